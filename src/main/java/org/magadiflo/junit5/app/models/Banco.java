@@ -1,17 +1,31 @@
 package org.magadiflo.junit5.app.models;
 
 import java.math.BigDecimal;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Banco {
 
     private String nombre;
 
-    private List<Cuenta> cuentas;
+    //Se reemplaza por una nueva lista inmutable en cada escritura, los lectores no ven cambios en la lista
+    //que ya obtuvieron. Solo cubre qué cuentas hay, los saldos de cada Cuenta siguen siendo mutables
+    private volatile List<Cuenta> cuentas;
+
+    //Cada transferencia suma 1 a version al entrar y al salir. getSaldosSnapshot() reintenta si hubo una
+    //transferencia en curso o si version cambió mientras leía, así nunca ve un débito sin su crédito.
+    //Solo cubre las transferencias hechas con este Banco, con transferencias sin pausa puede reintentar mucho
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger transferenciasEnCurso = new AtomicInteger();
 
     public Banco() {
-        this.cuentas = new ArrayList<>();
+        this.cuentas = List.of();
     }
 
     public String getNombre() {
@@ -26,18 +40,60 @@ public class Banco {
         return cuentas;
     }
 
-    public void setCuentas(List<Cuenta> cuentas) {
-        this.cuentas = cuentas;
+    public List<Map.Entry<Cuenta, BigDecimal>> getSaldosSnapshot() {
+        while (true) {
+            long versionInicial = this.version.get();
+            if (this.transferenciasEnCurso.get() == 0) {
+                List<Cuenta> cuentasActuales = this.cuentas;
+                List<Map.Entry<Cuenta, BigDecimal>> saldos = new ArrayList<>(cuentasActuales.size());
+                for (Cuenta cuenta : cuentasActuales) {
+                    saldos.add(new AbstractMap.SimpleImmutableEntry<>(cuenta, cuenta.getSaldo()));
+                }
+                if (this.version.get() == versionInicial) {
+                    return Collections.unmodifiableList(saldos);
+                }
+            }
+            Thread.yield(); //Deja terminar a la transferencia en curso, a la que nunca se bloquea
+        }
+    }
+
+    public synchronized void setCuentas(List<Cuenta> cuentas) {
+        List<Cuenta> nuevasCuentas = new ArrayList<>();
+        if (cuentas != null) {
+            cuentas.stream().filter(Objects::nonNull).forEach(nuevasCuentas::add); //Las entradas null se descartan
+        }
+        nuevasCuentas.forEach(cuenta -> cuenta.setBanco(this));
+        this.cuentas = Collections.unmodifiableList(nuevasCuentas);
     }
 
-    public Banco addCuenta(Cuenta cuenta) {
-        this.cuentas.add(cuenta);
+    public synchronized Banco addCuenta(Cuenta cuenta) {
+        List<Cuenta> nuevasCuentas = new ArrayList<>(this.cuentas.size() + 1);
+        nuevasCuentas.addAll(this.cuentas);
+        nuevasCuentas.add(cuenta);
         cuenta.setBanco(this);
+        this.cuentas = Collections.unmodifiableList(nuevasCuentas);
         return this;
     }
 
     public void transferir(Cuenta origen, Cuenta destino, BigDecimal monto) {
-        origen.debito(monto);
-        destino.credito(monto);
+        this.transferir(origen, destino, Dinero.of(monto));
+    }
+
+    public void transferir(Cuenta origen, Cuenta destino, Dinero monto) {
+        this.transferenciasEnCurso.incrementAndGet();
+        this.version.incrementAndGet();
+        try {
+            int escalaOrigen = origen.getEscalaSaldo();
+            origen.debito(monto);
+            try {
+                destino.credito(monto);
+            } catch (RuntimeException e) {
+                origen.revertirDebito(monto, escalaOrigen); //El crédito falló (ej. desbordamiento), devolvemos el monto al origen
+                throw e;
+            }
+        } finally {
+            this.version.incrementAndGet();
+            this.transferenciasEnCurso.decrementAndGet();
+        }
     }
 }
@@ -3,17 +3,46 @@ package org.magadiflo.junit5.app.models;
 import org.magadiflo.junit5.app.exceptions.DineroInsuficienteException;
 
 import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class Cuenta {
 
+    //Potencia de 2 >= número de procesadores, para elegir la celda con una máscara
+    private static final int NUM_CELDAS = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+    private static final int SEPARACION = 8; //8 longs = 64 bytes, cada celda en su propia línea de caché
+    private static final long LIMITE_CELDAS = Long.MAX_VALUE / 64;
+    private static final long LIMITE_CELDA = LIMITE_CELDAS / NUM_CELDAS;
+    private static final long LIMITE_BASE = Long.MAX_VALUE - LIMITE_CELDAS; //Así base + celdas nunca desborda
+    private static final long RETIRADA = Long.MIN_VALUE; //Celda retirada en el descenso, ya no admite créditos
+    private static final int UMBRAL_ASCENSO = 16; //CAS fallidos dentro de una ventana para pasar a modo caliente
+    private static final long VENTANA_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int CREDITOS_ENTRE_REVISIONES = 64; //En modo caliente, cada cuántos créditos de una celda se revisa la ventana
+    private static final int SIN_SALDO = -1;
+
     private String persona;
-    private BigDecimal saldo;
+
+    //Saldo en unidades de Dinero. Los créditos hacen CAS sobre saldoBase, si fallan a menudo dentro de una
+    //ventana la cuenta pasa a modo caliente (celdas != null) y los créditos van a las celdas. En modo caliente
+    //los débitos (synchronized) suman las celdas a saldoBase antes de validar el sobregiro
+    private final AtomicLong saldoBase = new AtomicLong();
+    private final AtomicInteger escala = new AtomicInteger(SIN_SALDO); //Escala visible del saldo
+    private final AtomicInteger contencion = new AtomicInteger(); //CAS fallidos en la ventana actual
+    private volatile long inicioVentana = System.nanoTime();
+    private volatile int versionModo; //Cambia en cada ascenso y descenso, para las lecturas sin bloqueo
+    private volatile AtomicLongArray celdas;
 
     private Banco banco;
 
     public Cuenta(String persona, BigDecimal saldo) {
+        this(persona, saldo == null ? null : Dinero.of(saldo));
+    }
+
+    public Cuenta(String persona, Dinero saldo) {
         this.persona = persona;
-        this.saldo = saldo;
+        this.establecerSaldo(saldo);
     }
 
     public String getPersona() {
@@ -25,11 +54,33 @@ public class Cuenta {
     }
 
     public BigDecimal getSaldo() {
-        return saldo;
+        Dinero saldoActual = this.getSaldoDinero();
+        return saldoActual == null ? null : saldoActual.toBigDecimal();
     }
 
     public void setSaldo(BigDecimal saldo) {
-        this.saldo = saldo;
+        this.establecerSaldo(saldo == null ? null : Dinero.of(saldo));
+    }
+
+    public Dinero getSaldoDinero() {
+        //Sin bloqueo si no hubo celdas antes ni después de leer saldoBase y el modo no cambió entre medio
+        int version = this.versionModo;
+        if (this.celdas == null) {
+            long unidades = this.saldoBase.get();
+            if (this.celdas == null && this.versionModo == version) {
+                return this.crearSaldo(unidades);
+            }
+        }
+        synchronized (this) { //Evita leer a medias mientras un débito mueve las celdas a saldoBase
+            long unidades = this.saldoBase.get();
+            AtomicLongArray celdasActuales = this.celdas;
+            if (celdasActuales != null) {
+                for (int i = 0; i < NUM_CELDAS; i++) {
+                    unidades += celdasActuales.get(i * SEPARACION);
+                }
+            }
+            return this.crearSaldo(unidades);
+        }
     }
 
     public Banco getBanco() {
@@ -41,15 +92,217 @@ public class Cuenta {
     }
 
     public void debito(BigDecimal monto) {
-        BigDecimal nuevoSaldo = this.saldo.subtract(monto);
-        if (nuevoSaldo.compareTo(BigDecimal.ZERO) < 0) {
-            throw new DineroInsuficienteException("Dinero Insuficiente");
+        this.debito(Dinero.of(monto));
+    }
+
+    public void debito(Dinero monto) {
+        this.comprobarSaldo();
+        if (this.celdas != null) {
+            this.debitoCaliente(monto);
+            return;
         }
-        this.saldo = nuevoSaldo;
+        //Sin bloqueo: las celdas solo guardan créditos, validar contra saldoBase nunca permite un sobregiro
+        this.restarDeBase(monto.unidades());
+        this.actualizarEscala(monto.getEscala());
+    }
+
+    private synchronized void debitoCaliente(Dinero monto) {
+        this.revisarVentana();
+        this.plegarCeldas();
+        this.restarDeBase(monto.unidades());
+        this.actualizarEscala(monto.getEscala());
+    }
+
+    private void restarDeBase(long unidades) {
+        long saldoActual;
+        long nuevoSaldo;
+        do {
+            saldoActual = this.saldoBase.get();
+            nuevoSaldo = Math.subtractExact(saldoActual, unidades);
+            if (nuevoSaldo > LIMITE_BASE) {
+                throw new ArithmeticException("Saldo fuera de rango");
+            }
+            if (nuevoSaldo < 0) {
+                throw new DineroInsuficienteException("Dinero Insuficiente");
+            }
+        } while (!this.saldoBase.compareAndSet(saldoActual, nuevoSaldo));
     }
 
     public void credito(BigDecimal monto) {
-        this.saldo = this.saldo.add(monto);
+        this.credito(Dinero.of(monto));
+    }
+
+    public void credito(Dinero monto) {
+        this.comprobarSaldo();
+        long unidades = monto.unidades();
+        AtomicLongArray celdasActuales = this.celdas;
+        if (celdasActuales != null && unidades > 0) {
+            if (this.creditoEnCelda(celdasActuales, unidades)) {
+                this.actualizarEscala(monto.getEscala());
+                return;
+            }
+            this.plegarCeldas(); //La celda llegó a su límite o fue retirada
+        }
+        int fallos = -1;
+        long saldoActual;
+        long nuevoSaldo;
+        do {
+            fallos++;
+            saldoActual = this.saldoBase.get();
+            nuevoSaldo = Math.addExact(saldoActual, unidades);
+            if (nuevoSaldo > LIMITE_BASE) {
+                throw new ArithmeticException("Saldo fuera de rango");
+            }
+        } while (!this.saldoBase.compareAndSet(saldoActual, nuevoSaldo));
+        this.actualizarEscala(monto.getEscala());
+        if (fallos > 0) {
+            this.registrarContencion(fallos);
+        }
+    }
+
+    //Devuelve false si la celda fue retirada o no admite el monto sin pasar su límite
+    private boolean creditoEnCelda(AtomicLongArray celdasActuales, long unidades) {
+        int indice = (int) (Thread.currentThread().getId() & (NUM_CELDAS - 1)) * SEPARACION;
+        long valorActual;
+        while (true) {
+            valorActual = celdasActuales.get(indice);
+            if (valorActual == RETIRADA || valorActual > LIMITE_CELDA - unidades) {
+                return false;
+            }
+            if (celdasActuales.compareAndSet(indice, valorActual, valorActual + unidades)) {
+                break;
+            }
+            this.contencion.incrementAndGet(); //Dos hilos en la misma celda
+        }
+        //Créditos de la celda en la ventana actual, en su misma línea de caché (aproximado, solo decide el descenso)
+        long creditos = celdasActuales.get(indice + 1) + 1;
+        celdasActuales.lazySet(indice + 1, creditos);
+        if ((creditos == 1 || creditos % CREDITOS_ENTRE_REVISIONES == 0) && this.ventanaVencida()) {
+            this.revisarVentana();
+        }
+        return true;
+    }
+
+    void registrarContencion(int fallos) {
+        if (this.ventanaVencida()) {
+            this.inicioVentana = System.nanoTime();
+            this.contencion.set(0);
+        }
+        if (this.contencion.addAndGet(fallos) >= UMBRAL_ASCENSO) {
+            this.ascender();
+        }
+    }
+
+    private boolean ventanaVencida() {
+        return System.nanoTime() - this.inicioVentana >= VENTANA_NANOS;
+    }
+
+    private synchronized void ascender() {
+        if (this.celdas != null || this.saldoBase.get() > LIMITE_BASE) {
+            return;
+        }
+        this.versionModo++;
+        this.celdas = new AtomicLongArray(NUM_CELDAS * SEPARACION);
+        this.contencion.set(0);
+        this.inicioVentana = System.nanoTime();
+    }
+
+    //Al vencer la ventana en modo caliente: si hubo pocos créditos, o solo acreditó un hilo (una sola celda
+    //usada y sin choques), la cuenta vuelve al modo normal
+    private synchronized void revisarVentana() {
+        AtomicLongArray celdasActuales = this.celdas;
+        if (celdasActuales == null || !this.ventanaVencida()) {
+            return;
+        }
+        long creditos = 0;
+        int celdasUsadas = 0;
+        for (int i = 0; i < NUM_CELDAS; i++) {
+            long creditosCelda = celdasActuales.getAndSet(i * SEPARACION + 1, 0);
+            creditos += creditosCelda;
+            celdasUsadas += creditosCelda > 0 ? 1 : 0;
+        }
+        int fallos = this.contencion.getAndSet(0);
+        this.inicioVentana = System.nanoTime();
+        if (creditos < UMBRAL_ASCENSO || (celdasUsadas <= 1 && fallos == 0)) {
+            this.descender();
+        }
+    }
+
+    //Marca cada celda como RETIRADA (un crédito concurrente ya no puede entrar) y suma lo que tenía a saldoBase
+    private synchronized void descender() {
+        AtomicLongArray celdasActuales = this.celdas;
+        if (celdasActuales == null) {
+            return;
+        }
+        this.versionModo++;
+        for (int i = 0; i < NUM_CELDAS; i++) {
+            this.saldoBase.addAndGet(celdasActuales.getAndSet(i * SEPARACION, RETIRADA));
+        }
+        this.celdas = null;
+        this.contencion.set(0);
+    }
+
+    //Mueve lo acumulado en las celdas a saldoBase, sin pasar LIMITE_BASE
+    private synchronized void plegarCeldas() {
+        AtomicLongArray celdasActuales = this.celdas;
+        if (celdasActuales == null) {
+            return;
+        }
+        for (int i = 0; i < NUM_CELDAS; i++) {
+            int indice = i * SEPARACION;
+            long valor = celdasActuales.get(indice);
+            if (valor == 0) {
+                continue;
+            }
+            long saldoActual;
+            do {
+                saldoActual = this.saldoBase.get();
+                if (saldoActual > LIMITE_BASE - valor) {
+                    return;
+                }
+            } while (!this.saldoBase.compareAndSet(saldoActual, saldoActual + valor));
+            celdasActuales.getAndAdd(indice, -valor); //Los créditos que llegaron mientras tanto se quedan en la celda
+        }
+    }
+
+    private synchronized void establecerSaldo(Dinero saldo) {
+        if (saldo != null && saldo.unidades() > LIMITE_BASE) {
+            throw new ArithmeticException("Saldo fuera de rango");
+        }
+        this.descender();
+        this.saldoBase.set(saldo == null ? 0 : saldo.unidades());
+        this.escala.set(saldo == null ? SIN_SALDO : saldo.getEscala());
+    }
+
+    private Dinero crearSaldo(long unidades) {
+        int escalaActual = this.escala.get();
+        return escalaActual == SIN_SALDO ? null : Dinero.deUnidades(unidades, escalaActual);
+    }
+
+    private void comprobarSaldo() {
+        if (this.escala.get() == SIN_SALDO) {
+            throw new NullPointerException("La cuenta no tiene saldo");
+        }
+    }
+
+    private void actualizarEscala(int escalaMonto) {
+        if (escalaMonto > this.escala.get()) {
+            this.escala.accumulateAndGet(escalaMonto, Math::max);
+        }
+    }
+
+    int getEscalaSaldo() {
+        return escala.get();
+    }
+
+    //Deshace un débito ya aplicado (rollback de Banco.transferir), también la escala visible que subió el débito
+    void revertirDebito(Dinero monto, int escalaAnterior) {
+        this.credito(monto);
+        this.escala.compareAndSet(Math.max(escalaAnterior, monto.getEscala()), escalaAnterior);
+    }
+
+    boolean isCaliente() {
+        return celdas != null;
     }
 
     @Override
@@ -58,9 +311,10 @@ public class Cuenta {
             return false;
         }
         Cuenta c = (Cuenta) obj;
-        if (this.persona == null || this.saldo == null) {
+        Dinero saldoActual = this.getSaldoDinero();
+        if (this.persona == null || saldoActual == null) {
             return false;
         }
-        return this.persona.equals(c.getPersona()) && (this.saldo.compareTo(c.getSaldo()) == 0);
+        return this.persona.equals(c.getPersona()) && (saldoActual.compareTo(c.getSaldoDinero()) == 0);
     }
 }
@@ -0,0 +1,99 @@
+package org.magadiflo.junit5.app.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+//Monto exacto en un long con escala interna fija (ESCALA decimales), rango +-9223372036854.775807.
+//of(BigDecimal) rechaza montos con más de ESCALA decimales, nunca redondea. La escala visible
+//(la mayor de los operandos, como en BigDecimal) solo se usa en toBigDecimal(): 1000.00 - 100 = 900.00
+public final class Dinero implements Comparable<Dinero> {
+
+    public static final int ESCALA = 6;
+
+    public static final Dinero CERO = new Dinero(0L, 0);
+
+    private static final long[] POTENCIAS_DE_DIEZ = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    private final long unidades; //Valor multiplicado por 10^ESCALA
+    private final int escala;
+
+    private Dinero(long unidades, int escala) {
+        this.unidades = unidades;
+        this.escala = escala;
+    }
+
+    public static Dinero valueOf(long valorSinEscala, int escala) {
+        if (escala < 0 || escala > ESCALA) {
+            throw new ArithmeticException("Dinero admite como máximo " + ESCALA + " decimales, escala: " + escala);
+        }
+        return new Dinero(Math.multiplyExact(valorSinEscala, POTENCIAS_DE_DIEZ[ESCALA - escala]), escala);
+    }
+
+    public static Dinero of(BigDecimal monto) {
+        BigDecimal montoEscalado;
+        try {
+            montoEscalado = monto.setScale(ESCALA, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Dinero admite como máximo " + ESCALA + " decimales: " + monto.toPlainString());
+        }
+        return new Dinero(montoEscalado.unscaledValue().longValueExact(), Math.min(Math.max(monto.scale(), 0), ESCALA));
+    }
+
+    //Para Cuenta, que guarda el saldo directamente en unidades. Sube la escala visible si
+    //las unidades tienen más decimales, así toBigDecimal() nunca trunca
+    static Dinero deUnidades(long unidades, int escala) {
+        while (escala < ESCALA && unidades % POTENCIAS_DE_DIEZ[ESCALA - escala] != 0) {
+            escala++;
+        }
+        return new Dinero(unidades, escala);
+    }
+
+    long unidades() {
+        return unidades;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unidades / POTENCIAS_DE_DIEZ[ESCALA - escala], escala);
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    public Dinero add(Dinero monto) {
+        return new Dinero(Math.addExact(this.unidades, monto.unidades), Math.max(this.escala, monto.escala));
+    }
+
+    public Dinero subtract(Dinero monto) {
+        return new Dinero(Math.subtractExact(this.unidades, monto.unidades), Math.max(this.escala, monto.escala));
+    }
+
+    public int signum() {
+        return Long.signum(unidades);
+    }
+
+    @Override
+    public int compareTo(Dinero monto) {
+        return Long.compare(this.unidades, monto.unidades);
+    }
+
+    //Igual que BigDecimal, 2.0 no es igual a 2.00. Para comparar solo el valor usar compareTo(...)
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Dinero)) {
+            return false;
+        }
+        Dinero d = (Dinero) obj;
+        return this.unidades == d.unidades && this.escala == d.escala;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(unidades) + escala;
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -11,11 +11,19 @@ import org.magadiflo.junit5.app.exceptions.DineroInsuficienteException;
 
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.*;
@@ -172,6 +180,155 @@ class CuentaTest {
             assertEquals("1100.00", cuenta.getSaldo().toPlainString());
         }
 
+        @Tag(value = "cuenta")
+        @Test
+        void testCreditoDebitoConcurrenteCuenta() throws Exception { //Ningún crédito ni débito debe perderse entre hilos
+            cuenta = new Cuenta("Gaspar", new BigDecimal("5000.00")); //Alcanza aunque todos los débitos lleguen antes que los créditos
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> tareas = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    tareas.add(executor.submit(() -> cuenta.credito(new BigDecimal("10"))));
+                    tareas.add(executor.submit(() -> cuenta.debito(new BigDecimal("5"))));
+                }
+                for (Future<?> tarea : tareas) {
+                    tarea.get(10, TimeUnit.SECONDS); //Si alguna tarea lanzó una excepción, get(...) la propaga
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertEquals("10000.00", cuenta.getSaldo().toPlainString());
+        }
+
+        @Tag(value = "cuenta")
+        @Test
+        @DisplayName(value = "Cuenta caliente: créditos en celdas, débito contra el total y descenso al vencer la ventana")
+        void testCuentaCaliente() throws Exception {
+            cuenta = new Cuenta("Comercio", new BigDecimal("100.00"));
+            cuenta.registrarContencion(16); //Simula los CAS fallidos que provocan el ascenso
+            assertTrue(cuenta.isCaliente());
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> tareas = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    tareas.add(executor.submit(() -> cuenta.credito(new BigDecimal("1.50"))));
+                }
+                for (Future<?> tarea : tareas) {
+                    tarea.get(10, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals("1600.00", cuenta.getSaldo().toPlainString());
+
+            //El sobregiro se valida contra el total de todas las celdas
+            assertThrows(DineroInsuficienteException.class, () -> cuenta.debito(new BigDecimal("1600.01")));
+
+            //Al vencer la ventana, varios hilos acreditaron: la cuenta sigue caliente
+            TimeUnit.MILLISECONDS.sleep(150);
+            cuenta.debito(new BigDecimal("600.00"));
+            assertTrue(cuenta.isCaliente(), () -> "Varios hilos acreditaron, la cuenta sigue caliente");
+
+            //En la ventana siguiente no hubo créditos: vuelve al modo normal
+            TimeUnit.MILLISECONDS.sleep(150);
+            cuenta.debito(new BigDecimal("1000.00"));
+            assertFalse(cuenta.isCaliente());
+            assertEquals("0.00", cuenta.getSaldo().toPlainString());
+
+            cuenta.credito(new BigDecimal("5"));
+            assertEquals("5.00", cuenta.getSaldo().toPlainString());
+        }
+
+        @Tag(value = "cuenta")
+        @Test
+        void testCuentaCalienteDesciendeEnCredito() throws InterruptedException { //Una cuenta que solo recibe créditos también desciende
+            cuenta = new Cuenta("Comercio", new BigDecimal("100.00"));
+            cuenta.registrarContencion(16);
+            assertTrue(cuenta.isCaliente());
+
+            TimeUnit.MILLISECONDS.sleep(150);
+            cuenta.credito(new BigDecimal("1.50"));
+
+            assertFalse(cuenta.isCaliente());
+            assertEquals("101.50", cuenta.getSaldo().toPlainString());
+        }
+
+        @Tag(value = "cuenta")
+        @Test
+        void testContencionPorVentana() throws InterruptedException { //Los CAS fallidos solo cuentan dentro de la misma ventana
+            cuenta = new Cuenta("Comercio", new BigDecimal("100.00"));
+            cuenta.registrarContencion(15);
+            TimeUnit.MILLISECONDS.sleep(150);
+            cuenta.registrarContencion(1);
+            assertFalse(cuenta.isCaliente());
+
+            cuenta.registrarContencion(15);
+            assertTrue(cuenta.isCaliente());
+        }
+
+        @Tag(value = "cuenta")
+        @Test
+        @Timeout(value = 10)
+        void testCreditoRegistraCasFallidos() throws Exception { //Los CAS fallidos reales de credito(...) llegan a registrarContencion(...)
+            AtomicInteger fallosRegistrados = new AtomicInteger();
+            cuenta = new Cuenta("Comercio", new BigDecimal("0.00")) {
+                @Override
+                void registrarContencion(int fallos) {
+                    fallosRegistrados.addAndGet(fallos);
+                    super.registrarContencion(fallos);
+                }
+            };
+            AtomicLong creditos = new AtomicLong();
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> tareas = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    tareas.add(executor.submit(() -> {
+                        while (fallosRegistrados.get() == 0) {
+                            cuenta.credito(new BigDecimal("0.01"));
+                            creditos.incrementAndGet();
+                        }
+                    }));
+                }
+                for (Future<?> tarea : tareas) {
+                    tarea.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertTrue(fallosRegistrados.get() > 0);
+            assertEquals(BigDecimal.valueOf(creditos.get(), 2), cuenta.getSaldo());
+        }
+
+        @Tag(value = "cuenta")
+        @Test
+        @Timeout(value = 30)
+        void testAscensoPorContencionReal() throws Exception { //Con varios procesadores, la contención real provoca el ascenso
+            assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+            cuenta = new Cuenta("Comercio", new BigDecimal("0.00"));
+            ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            try {
+                List<Future<?>> tareas = new ArrayList<>();
+                for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+                    tareas.add(executor.submit(() -> {
+                        while (!cuenta.isCaliente()) {
+                            cuenta.credito(new BigDecimal("0.01"));
+                        }
+                    }));
+                }
+                for (Future<?> tarea : tareas) {
+                    tarea.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertTrue(cuenta.isCaliente());
+        }
+
         //Se puede tener más de una etiqueta
         @Tag(value = "cuenta")
         @Tag(value = "banco")
@@ -187,6 +344,25 @@ class CuentaTest {
             assertEquals("2000", cuentaOrigen.getSaldo().toPlainString());
             assertEquals("1500", cuentaDestino.getSaldo().toPlainString());
         }
+
+        @Tag(value = "banco")
+        @Tag(value = "error")
+        @Test
+        void testTransferirDesbordamientoDevuelveMonto() { //Si el crédito al destino falla, el monto vuelve al origen
+            Cuenta cuentaOrigen = new Cuenta("Alicia", new BigDecimal("100.00"));
+            Cuenta cuentaDestino = new Cuenta("Rachul", new BigDecimal("9079256848778.90")); //Cerca del saldo máximo de una cuenta
+
+            Banco banco = new Banco();
+            assertThrows(ArithmeticException.class, () -> banco.transferir(cuentaOrigen, cuentaDestino, new BigDecimal("50.00")));
+
+            assertEquals("100.00", cuentaOrigen.getSaldo().toPlainString());
+            assertEquals("9079256848778.90", cuentaDestino.getSaldo().toPlainString());
+
+            //Un monto con más decimales que el saldo tampoco cambia la escala del origen
+            assertThrows(ArithmeticException.class, () -> banco.transferir(cuentaOrigen, cuentaDestino, new BigDecimal("1.000000")));
+            assertEquals("100.00", cuentaOrigen.getSaldo().toPlainString());
+            assertEquals("9079256848778.90", cuentaDestino.getSaldo().toPlainString());
+        }
     }
 
     @Tag(value = "cuenta")
@@ -253,6 +429,84 @@ class CuentaTest {
         );
     }
 
+    @Tag(value = "banco")
+    @Test
+    @DisplayName(value = "Las cuentas del banco se leen como una vista inmutable (snapshot)")
+    void testSnapshotCuentasBanco() {
+        Banco banco = new Banco();
+        banco.addCuenta(new Cuenta("Alicia", new BigDecimal("2500")));
+
+        List<Cuenta> snapshot = banco.getCuentas();
+        banco.addCuenta(new Cuenta("Rachul", new BigDecimal("1000")));
+
+        assertAll(
+                () -> assertEquals(1, snapshot.size(), () -> "El snapshot no debe ver las cuentas agregadas después"),
+                () -> assertEquals(2, banco.getCuentas().size()),
+                () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.add(new Cuenta("Pepe", BigDecimal.TEN)))
+        );
+    }
+
+    @Tag(value = "banco")
+    @Test
+    @Timeout(value = 30)
+    @DisplayName(value = "El snapshot de saldos nunca ve una transferencia a medias")
+    void testSnapshotSaldosBanco() throws Exception {
+        CountDownLatch debitado = new CountDownLatch(1);
+        CountDownLatch liberarCredito = new CountDownLatch(1);
+        Cuenta cuentaAlicia = new Cuenta("Alicia", new BigDecimal("1000.00"));
+        Cuenta cuentaRachul = new Cuenta("Rachul", new BigDecimal("1000.00")) {
+            @Override
+            public void credito(Dinero monto) {
+                debitado.countDown(); //El origen ya fue debitado, la transferencia queda a medias
+                try {
+                    liberarCredito.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.credito(monto);
+            }
+        };
+        Banco banco = new Banco();
+        banco.addCuenta(cuentaAlicia).addCuenta(cuentaRachul);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> transferencia = executor.submit(() -> banco.transferir(cuentaAlicia, cuentaRachul, new BigDecimal("100.00")));
+            debitado.await();
+            assertEquals("900.00", cuentaAlicia.getSaldo().toPlainString(), () -> "Leyendo cuenta por cuenta se ve la transferencia a medias");
+
+            Future<List<Map.Entry<Cuenta, BigDecimal>>> snapshot = executor.submit(banco::getSaldosSnapshot);
+            assertThrows(TimeoutException.class, () -> snapshot.get(200, TimeUnit.MILLISECONDS));
+
+            liberarCredito.countDown();
+            transferencia.get(); //La transferencia nunca espera al snapshot
+            List<Map.Entry<Cuenta, BigDecimal>> saldos = snapshot.get();
+            assertAll(
+                    () -> assertEquals(List.of(cuentaAlicia, cuentaRachul), saldos.stream().map(Map.Entry::getKey).toList()),
+                    () -> assertEquals("900.00", saldos.get(0).getValue().toPlainString()),
+                    () -> assertEquals("1100.00", saldos.get(1).getValue().toPlainString()),
+                    () -> assertThrows(UnsupportedOperationException.class, () -> saldos.remove(0))
+            );
+        } finally {
+            liberarCredito.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Tag(value = "banco")
+    @Test
+    void testSetCuentasBanco() {
+        Banco banco = new Banco();
+        Cuenta cuentaAlicia = new Cuenta("Alicia", new BigDecimal("2500"));
+        banco.setCuentas(Arrays.asList(cuentaAlicia, null));
+
+        assertSame(banco, cuentaAlicia.getBanco());
+        assertEquals(List.of(cuentaAlicia), banco.getCuentas(), () -> "Las entradas null no se publican");
+
+        banco.setCuentas(null);
+        assertTrue(banco.getCuentas().isEmpty());
+    }
+
     @Nested
     class SistemaOperativoTest {
         @Test
@@ -0,0 +1,169 @@
+package org.magadiflo.junit5.app.models;
+
+import org.magadiflo.junit5.app.exceptions.DineroInsuficienteException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH
+ * ****
+ * Compara la aritmética: la misma lógica original de débito/crédito/transferencia
+ * (sin sincronizar) con BigDecimal (CuentaBigDecimal) y con Dinero (CuentaDinero).
+ * transferirIdaVueltaCuenta mide además el camino real de Cuenta/Banco, que suma
+ * el costo de hacer las operaciones seguras entre hilos (CAS, escala atómica,
+ * versión del Banco para getSaldosSnapshot).
+ * No es una prueba unitaria (no termina en Test), por eso
+ * el maven-surefire no la ejecuta. Para correrla, ejecutar el método main
+ * desde el IDE después de compilar los test (mvn test-compile), así el
+ * procesador de anotaciones de JMH genera las clases del benchmark.
+ *
+ * Las cuentas se crean una sola vez en el @Setup y cada transferencia va y vuelve,
+ * así los saldos no cambian entre invocaciones y no se mide la creación de objetos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class DineroBenchmark {
+
+    /**
+     * Copia de la lógica original de Cuenta y Banco.transferir con BigDecimal
+     */
+    static class CuentaBigDecimal {
+        private BigDecimal saldo;
+
+        CuentaBigDecimal(BigDecimal saldo) {
+            this.saldo = saldo;
+        }
+
+        void debito(BigDecimal monto) {
+            BigDecimal nuevoSaldo = this.saldo.subtract(monto);
+            if (nuevoSaldo.compareTo(BigDecimal.ZERO) < 0) {
+                throw new DineroInsuficienteException("Dinero Insuficiente");
+            }
+            this.saldo = nuevoSaldo;
+        }
+
+        void credito(BigDecimal monto) {
+            this.saldo = this.saldo.add(monto);
+        }
+
+        static void transferir(CuentaBigDecimal origen, CuentaBigDecimal destino, BigDecimal monto) {
+            origen.debito(monto);
+            destino.credito(monto);
+        }
+    }
+
+    /**
+     * La misma lógica que CuentaBigDecimal, pero con Dinero
+     */
+    static class CuentaDinero {
+        private Dinero saldo;
+
+        CuentaDinero(Dinero saldo) {
+            this.saldo = saldo;
+        }
+
+        void debito(Dinero monto) {
+            Dinero nuevoSaldo = this.saldo.subtract(monto);
+            if (nuevoSaldo.signum() < 0) {
+                throw new DineroInsuficienteException("Dinero Insuficiente");
+            }
+            this.saldo = nuevoSaldo;
+        }
+
+        void credito(Dinero monto) {
+            this.saldo = this.saldo.add(monto);
+        }
+
+        static void transferir(CuentaDinero origen, CuentaDinero destino, Dinero monto) {
+            origen.debito(monto);
+            destino.credito(monto);
+        }
+    }
+
+    private BigDecimal saldoBigDecimal;
+    private BigDecimal montoBigDecimal;
+    private CuentaBigDecimal origenBigDecimal;
+    private CuentaBigDecimal destinoBigDecimal;
+
+    private Dinero saldoDinero;
+    private Dinero montoDinero;
+    private CuentaDinero origenDinero;
+    private CuentaDinero destinoDinero;
+
+    private Banco banco;
+    private Cuenta origenCuenta;
+    private Cuenta destinoCuenta;
+
+    @Setup
+    public void setUp() {
+        saldoBigDecimal = new BigDecimal("1000.50");
+        montoBigDecimal = new BigDecimal("100.25");
+        origenBigDecimal = new CuentaBigDecimal(saldoBigDecimal);
+        destinoBigDecimal = new CuentaBigDecimal(saldoBigDecimal);
+
+        saldoDinero = Dinero.of(saldoBigDecimal);
+        montoDinero = Dinero.of(montoBigDecimal);
+        origenDinero = new CuentaDinero(saldoDinero);
+        destinoDinero = new CuentaDinero(saldoDinero);
+
+        banco = new Banco();
+        origenCuenta = new Cuenta("Alicia", saldoDinero);
+        destinoCuenta = new Cuenta("Rachul", saldoDinero);
+    }
+
+    @Benchmark
+    public BigDecimal debitoCreditoBigDecimal() {
+        BigDecimal nuevoSaldo = saldoBigDecimal.subtract(montoBigDecimal);
+        if (nuevoSaldo.compareTo(BigDecimal.ZERO) < 0) {
+            throw new IllegalStateException();
+        }
+        return nuevoSaldo.add(montoBigDecimal);
+    }
+
+    @Benchmark
+    public Dinero debitoCreditoDinero() {
+        Dinero nuevoSaldo = saldoDinero.subtract(montoDinero);
+        if (nuevoSaldo.signum() < 0) {
+            throw new IllegalStateException();
+        }
+        return nuevoSaldo.add(montoDinero);
+    }
+
+    @Benchmark
+    public BigDecimal transferirIdaVueltaBigDecimal() {
+        CuentaBigDecimal.transferir(origenBigDecimal, destinoBigDecimal, montoBigDecimal);
+        CuentaBigDecimal.transferir(destinoBigDecimal, origenBigDecimal, montoBigDecimal);
+        return origenBigDecimal.saldo;
+    }
+
+    @Benchmark
+    public Dinero transferirIdaVueltaDinero() {
+        CuentaDinero.transferir(origenDinero, destinoDinero, montoDinero);
+        CuentaDinero.transferir(destinoDinero, origenDinero, montoDinero);
+        return origenDinero.saldo;
+    }
+
+    @Benchmark
+    public Dinero transferirIdaVueltaCuenta() {
+        banco.transferir(origenCuenta, destinoCuenta, montoDinero);
+        banco.transferir(destinoCuenta, origenCuenta, montoDinero);
+        return origenCuenta.getSaldoDinero();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DineroBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
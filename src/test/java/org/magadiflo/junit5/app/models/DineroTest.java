@@ -0,0 +1,84 @@
+package org.magadiflo.junit5.app.models;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag(value = "dinero")
+class DineroTest {
+
+    @ParameterizedTest(name = "número {index} ejecutando con valor {argumentsWithNames}")
+    @ValueSource(strings = {"0", "1000.12345", "-25.50", "900.00", "1E+3"})
+    void testConversionBigDecimal(String monto) { //Ida y vuelta sin perder el valor
+        BigDecimal esperado = new BigDecimal(monto);
+        BigDecimal real = Dinero.of(esperado).toBigDecimal();
+
+        assertEquals(0, esperado.compareTo(real), () -> String.format("Se esperaba %s pero se obtuvo %s", esperado, real));
+    }
+
+    @Test
+    @DisplayName(value = "Suma y resta conservan la escala como BigDecimal")
+    void testSumaRestaEscala() {
+        Dinero saldo = Dinero.of(new BigDecimal("1000.00"));
+
+        assertAll(
+                () -> assertEquals("900.00", saldo.subtract(Dinero.of(new BigDecimal("100"))).toString()),
+                () -> assertEquals("1100.50", saldo.add(Dinero.of(new BigDecimal("100.5"))).toString()),
+                () -> assertEquals("2000", Dinero.of(new BigDecimal("2500")).subtract(Dinero.of(new BigDecimal("500"))).toString())
+        );
+    }
+
+    @Test
+    void testCompareTo() {
+        assertAll(
+                () -> assertEquals(0, Dinero.of(new BigDecimal("2.0")).compareTo(Dinero.of(new BigDecimal("2.00")))),
+                () -> assertTrue(Dinero.of(new BigDecimal("0.01")).compareTo(Dinero.CERO) > 0),
+                () -> assertTrue(Dinero.of(new BigDecimal("-0.01")).signum() < 0),
+                () -> assertNotEquals(Dinero.of(new BigDecimal("2.0")), Dinero.of(new BigDecimal("2.00")))
+        );
+    }
+
+    @Test
+    @DisplayName(value = "La escala interna es fija, un monto con pocos decimales no reduce el rango")
+    void testEscalaFija() {
+        Cuenta cuenta = new Cuenta("Gaspar", new BigDecimal("9000000000000"));
+        cuenta.credito(new BigDecimal("0.000001"));
+        cuenta.credito(new BigDecimal("100000000"));
+
+        assertEquals("9000100000000.000001", cuenta.getSaldo().toPlainString());
+    }
+
+    @Tag(value = "error")
+    @Test
+    @DisplayName(value = "Los montos con más decimales que la escala fija se rechazan, no se redondean")
+    void testMasDecimalesQueLaEscala() {
+        Cuenta cuenta = new Cuenta("x", new BigDecimal("1000000"));
+
+        ArithmeticException exception = assertThrows(ArithmeticException.class, () -> cuenta.credito(new BigDecimal("0.0000000000001")));
+        assertEquals("Dinero admite como máximo 6 decimales: 0.0000000000001", exception.getMessage());
+        assertEquals("1000000", cuenta.getSaldo().toPlainString());
+
+        Cuenta cuentaLlena = new Cuenta("z", new BigDecimal("9079256848778.90"));
+        assertThrows(ArithmeticException.class, () -> cuentaLlena.credito(new BigDecimal("50.000001")));
+        assertEquals("9079256848778.90", cuentaLlena.getSaldo().toPlainString(), () -> "Un crédito fallido no cambia la escala");
+
+        assertThrows(ArithmeticException.class, () -> new Cuenta("y", new BigDecimal("1E-19")));
+        assertEquals("1.500000", Dinero.of(new BigDecimal("1.50000000")).toString()); //Los ceros sobrantes sí se aceptan
+    }
+
+    @Tag(value = "error")
+    @Test
+    void testDesbordamiento() {
+        Dinero maximo = Dinero.valueOf(Long.MAX_VALUE, Dinero.ESCALA);
+
+        assertThrows(ArithmeticException.class, () -> maximo.add(Dinero.valueOf(1, Dinero.ESCALA)));
+        assertThrows(ArithmeticException.class, () -> Dinero.of(new BigDecimal("9223372036854.775808")));
+        assertThrows(ArithmeticException.class, () -> Dinero.valueOf(Long.MAX_VALUE, 2));
+    }
+}